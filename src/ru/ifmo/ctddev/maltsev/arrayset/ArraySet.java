@@ -1,100 +1,550 @@
 package ru.ifmo.ctddev.maltsev.arrayset;
 
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
 
-public class ArraySet<T extends Comparable<? super T>> extends AbstractSet<T> implements SortedSet<T> {
+public class ArraySet<T extends Comparable<? super T>> extends AbstractSet<T> implements NavigableSet<T> {
 
-    private final List<T> list;
-    private Comparator<? super T> comparator;
-    private Comparator<T> equalsComparator = (x, y) -> (comparator.compare(x, y) >= 0) ? 1 : -1;
-    private boolean isNatural = false;
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    private final Object[] elements;
+    private final int from;
+    private final int to;
+    private final boolean reversed;
+    private final Comparator<? super T> comparator;
+    private final Comparator<? super T> order;
+    private final EytzingerIndex<T> index;
+    private final BloomFilter<T> filter;
 
     public ArraySet() {
         this(Collections.emptyList());
     }
 
     public ArraySet(Collection<? extends T> collection) {
-        this(collection, Comparable::compareTo);
-        isNatural = true;
+        this(collection, null);
     }
 
-    public ArraySet(Collection<? extends T> collection, Comparator<T> comparator) {
-        TreeSet<T> treeSet = new TreeSet<>(comparator);
-        treeSet.addAll(collection);
-        list = Collections.unmodifiableList(new ArrayList<>(treeSet));
+    public ArraySet(Collection<? extends T> collection, Comparator<? super T> comparator) {
         this.comparator = comparator;
+        this.order = orderOf(comparator);
+        Object[] array = collection.toArray();
+        int size = array.length;
+        if (!(collection instanceof SortedSet && Objects.equals(((SortedSet<?>) collection).comparator(), comparator))) {
+            if (!isSorted(array)) {
+                Arrays.sort(array, this::compare);
+            }
+            size = removeDuplicates(array);
+        }
+        elements = (size == array.length) ? array : Arrays.copyOf(array, size);
+        from = 0;
+        to = size;
+        reversed = false;
+        index = null;
+        filter = null;
     }
 
-    private ArraySet(List<T> list, Comparator<? super T> comparator, boolean isNatural) {
-        this.list = list;
+    private ArraySet(Object[] elements, int from, int to, boolean reversed, Comparator<? super T> comparator,
+                     EytzingerIndex<T> index, BloomFilter<T> filter) {
+        this.elements = elements;
+        this.from = from;
+        this.to = to;
+        this.reversed = reversed;
         this.comparator = comparator;
-        this.isNatural = isNatural;
+        this.order = orderOf(comparator);
+        this.index = index;
+        this.filter = filter;
+    }
+
+    public static <T extends Comparable<? super T>> ArraySet<T> parallelOf(Collection<? extends T> collection) {
+        return parallelOf(collection, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T extends Comparable<? super T>> ArraySet<T> parallelOf(Collection<? extends T> collection, Comparator<? super T> comparator) {
+        if (collection.size() < PARALLEL_THRESHOLD) {
+            return new ArraySet<>(collection, comparator);
+        }
+        Comparator<? super T> order = (comparator == null) ? Comparator.<T>naturalOrder() : comparator;
+        Object[] elements = collection.toArray();
+        Arrays.parallelSort(elements, (x, y) -> order.compare((T) x, (T) y));
+
+        int chunks = Math.min(Runtime.getRuntime().availableProcessors(), elements.length / PARALLEL_THRESHOLD);
+        int[] bounds = new int[chunks + 1];
+        for (int i = 0; i <= chunks; i++) {
+            bounds[i] = (int) ((long) elements.length * i / chunks);
+        }
+        int[] offsets = new int[chunks + 1];
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int count = 0;
+            for (int i = bounds[chunk]; i < bounds[chunk + 1]; i++) {
+                if (i == 0 || order.compare((T) elements[i - 1], (T) elements[i]) != 0) {
+                    count++;
+                }
+            }
+            offsets[chunk + 1] = count;
+        });
+        for (int i = 0; i < chunks; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        Object[] distinct = new Object[offsets[chunks]];
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int position = offsets[chunk];
+            for (int i = bounds[chunk]; i < bounds[chunk + 1]; i++) {
+                if (i == 0 || order.compare((T) elements[i - 1], (T) elements[i]) != 0) {
+                    distinct[position++] = elements[i];
+                }
+            }
+        });
+        return new ArraySet<T>(distinct, 0, distinct.length, false, comparator, null, null);
     }
 
-    private int binSearch(T key, Comparator<? super T> comparator) {
-        int index = Collections.binarySearch(list, key, comparator);
-        return (index >= 0) ? index : (-index - 2);
+    /**
+     * Returns a set with the same elements whose lookups go through an additional Eytzinger-ordered copy of the keys.
+     * Iteration still walks the sorted array; ascending views of the returned set share the index.
+     */
+    public ArraySet<T> withEytzingerLayout() {
+        return (index != null) ? this : new ArraySet<T>(elements, from, to, reversed, comparator, new EytzingerIndex<>(elements, from, to), filter);
+    }
+
+    /**
+     * Returns a set with the same elements whose {@link #contains} first consults a Bloom filter built with
+     * {@link Object#hashCode()}. Only valid when the comparator is consistent with {@code equals}.
+     */
+    public ArraySet<T> withBloomFilter(double falsePositiveRate) {
+        return withBloomFilter(falsePositiveRate, Object::hashCode);
+    }
+
+    /**
+     * Returns a set with the same elements whose {@link #contains} first consults a Bloom filter.
+     * Elements that are equal according to the comparator must have equal hashes.
+     */
+    public ArraySet<T> withBloomFilter(double falsePositiveRate, ToIntFunction<? super T> hash) {
+        return new ArraySet<>(elements, from, to, reversed, comparator, index, new BloomFilter<>(elements, from, to, falsePositiveRate, hash));
+    }
+
+    public BloomFilter<T> bloomFilter() {
+        return filter;
+    }
+
+    private Comparator<? super T> orderOf(Comparator<? super T> comparator) {
+        return (comparator == null) ? Comparator.<T>naturalOrder() : comparator;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(Object x, Object y) {
+        return order.compare((T) x, (T) y);
+    }
+
+    private boolean isSorted(Object[] array) {
+        for (int i = 1; i < array.length; i++) {
+            if (compare(array[i - 1], array[i]) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // keeps the first of equal elements, as TreeSet.addAll does; the sort above is stable
+    private int removeDuplicates(Object[] array) {
+        int size = 0;
+        for (int i = 0; i < array.length; i++) {
+            if (size == 0 || compare(array[size - 1], array[i]) != 0) {
+                array[size++] = array[i];
+            }
+        }
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T element(int position) {
+        return (T) elements[reversed ? to - 1 - position : from + position];
+    }
+
+    // same contract as Collections.binarySearch, positions are relative to the view
+    private int search(T key) {
+        if (index != null && !reversed) {
+            int position = index.binarySearch(key, order);
+            if (position >= from && position < to) {
+                return position - from;
+            }
+            int point = Math.min(Math.max((position >= 0) ? position : -position - 1, from), to);
+            return -(point - from) - 1;
+        }
+        int left = 0;
+        int right = size() - 1;
+        while (left <= right) {
+            int middle = (left + right) >>> 1;
+            int compare = order.compare(element(middle), key);
+            if (compare < 0) {
+                left = middle + 1;
+            } else if (compare > 0) {
+                right = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -left - 1;
+    }
+
+    private int binSearch(T key, boolean inclusive, boolean lower) {
+        int position = search(key);
+        if (position >= 0) {
+            return inclusive ? position : (lower ? position - 1 : position + 1);
+        }
+        return lower ? -position - 2 : -position - 1;
+    }
+
+    private T getOrNull(int position) {
+        return (position >= 0 && position < size()) ? element(position) : null;
+    }
+
+    private ArraySet<T> window(int fromPosition, int toPosition) {
+        if (fromPosition > toPosition) {
+            fromPosition = toPosition;
+        }
+        if (reversed) {
+            return new ArraySet<>(elements, to - toPosition, to - fromPosition, true, comparator, index, filter);
+        }
+        return new ArraySet<>(elements, from + fromPosition, from + toPosition, false, comparator, index, filter);
+    }
+
+    public T get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        return element(index);
+    }
+
+    @SuppressWarnings("unchecked")
+    public int indexOf(Object o) {
+        int position = search((T) o);
+        return (position >= 0) ? position : -1;
+    }
+
+    public int rank(T key) {
+        return binSearch(key, false, true) + 1;
+    }
+
+    /**
+     * Looks up all probes in one merge walk over the set. Probes that are not sorted by the set's comparator
+     * are walked in sorted order. Bit {@code i} of the result is set if {@code probes.get(i)} is in the set.
+     */
+    public BitSet containsEach(List<? extends T> probes) {
+        BitSet result = new BitSet(probes.size());
+        Integer[] permutation = null;
+        for (int i = 1; i < probes.size(); i++) {
+            if (order.compare(probes.get(i - 1), probes.get(i)) > 0) {
+                permutation = new Integer[probes.size()];
+                for (int j = 0; j < permutation.length; j++) {
+                    permutation[j] = j;
+                }
+                Arrays.sort(permutation, (x, y) -> order.compare(probes.get(x), probes.get(y)));
+                break;
+            }
+        }
+        int position = 0;
+        for (int i = 0; i < probes.size(); i++) {
+            int probe = (permutation == null) ? i : permutation[i];
+            T key = probes.get(probe);
+            position = advance(position, key);
+            if (position < size() && order.compare(element(position), key) == 0) {
+                result.set(probe);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean containsAll(Collection<?> c) {
+        if (!(c instanceof SortedSet && Objects.equals(((SortedSet<?>) c).comparator(), comparator))) {
+            return super.containsAll(c);
+        }
+        int position = 0;
+        for (Object o : c) {
+            T key = (T) o;
+            position = advance(position, key);
+            if (position == size() || order.compare(element(position), key) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // first position not before start whose element is not less than key
+    private int advance(int start, T key) {
+        if (start < size() && order.compare(element(start), key) < 0) {
+            return gallop(start, key);
+        }
+        return start;
+    }
+
+    public ArraySet<T> union(ArraySet<T> other) {
+        return merge(other, true, true, true);
+    }
+
+    public ArraySet<T> intersection(ArraySet<T> other) {
+        return merge(other, false, true, false);
+    }
+
+    public ArraySet<T> difference(ArraySet<T> other) {
+        return merge(other, true, false, false);
+    }
+
+    public ArraySet<T> symmetricDifference(ArraySet<T> other) {
+        return merge(other, true, false, true);
+    }
+
+    // one pass over both sorted arrays; runs that belong to one side only are skipped by galloping
+    private ArraySet<T> merge(ArraySet<T> other, boolean left, boolean both, boolean right) {
+        ArraySet<T> a = this;
+        ArraySet<T> b = Objects.equals(comparator, other.comparator) ? other : new ArraySet<>(other, comparator);
+        int capacity = (left ? a.size() : 0) + (right ? b.size() : 0);
+        Object[] result = new Object[(left || right) ? capacity : Math.min(a.size(), b.size())];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.size() && j < b.size()) {
+            int compare = order.compare(a.element(i), b.element(j));
+            if (compare < 0) {
+                int next = a.gallop(i, b.element(j));
+                while (left && i < next) {
+                    result[size++] = a.element(i++);
+                }
+                i = next;
+            } else if (compare > 0) {
+                int next = b.gallop(j, a.element(i));
+                while (right && j < next) {
+                    result[size++] = b.element(j++);
+                }
+                j = next;
+            } else {
+                if (both) {
+                    result[size++] = a.element(i);
+                }
+                i++;
+                j++;
+            }
+        }
+        while (left && i < a.size()) {
+            result[size++] = a.element(i++);
+        }
+        while (right && j < b.size()) {
+            result[size++] = b.element(j++);
+        }
+        return new ArraySet<T>((size == result.length) ? result : Arrays.copyOf(result, size), 0, size, false, comparator, null, null);
+    }
+
+    // first position after start whose element is not less than key; element(start) must be less than key
+    private int gallop(int start, T key) {
+        int bound = 1;
+        while (start + bound < size() && order.compare(element(start + bound), key) < 0) {
+            bound <<= 1;
+        }
+        int left = start + bound / 2 + 1;
+        int right = Math.min(start + bound, size());
+        while (left < right) {
+            int middle = (left + right) >>> 1;
+            if (order.compare(element(middle), key) < 0) {
+                left = middle + 1;
+            } else {
+                right = middle;
+            }
+        }
+        return left;
     }
 
 
     @Override
     public Iterator<T> iterator() {
-        return list.iterator();
+        return new Iterator<T>() {
+            private int position = 0;
+
+            @Override
+            public boolean hasNext() {
+                return position < size();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return element(position++);
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return new WindowSpliterator(0, size());
     }
 
     @Override
-    public SortedSet<T> subSet(T fromElement, T toElement) {
-        return headSet(toElement).tailSet(fromElement);
+    public Iterator<T> descendingIterator() {
+        return descendingSet().iterator();
     }
 
     @Override
-    public SortedSet<T> headSet(T toElement) {
-        int toIndex = binSearch(toElement, comparator);
-        if (toIndex != -1 && comparator.compare(toElement, list.get(toIndex)) == 0) {
-            toIndex--;
+    public ArraySet<T> descendingSet() {
+        Comparator<? super T> reversedComparator;
+        if (comparator == Collections.reverseOrder()) {
+            reversedComparator = null;
+        } else {
+            reversedComparator = Collections.reverseOrder(comparator);
         }
-        return new ArraySet<>(list.subList(0, toIndex + 1), comparator, isNatural);
+        return new ArraySet<>(elements, from, to, !reversed, reversedComparator, index, filter);
+    }
+
+    @Override
+    public T lower(T t) {
+        return getOrNull(binSearch(t, false, true));
+    }
+
+    @Override
+    public T floor(T t) {
+        return getOrNull(binSearch(t, true, true));
+    }
+
+    @Override
+    public T ceiling(T t) {
+        return getOrNull(binSearch(t, true, false));
+    }
+
+    @Override
+    public T higher(T t) {
+        return getOrNull(binSearch(t, false, false));
+    }
+
+    @Override
+    public T pollFirst() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public T pollLast() {
+        throw new UnsupportedOperationException();
     }
 
     @Override
-    public SortedSet<T> tailSet(T fromElement) {
-        int fromIndex = binSearch(fromElement, equalsComparator) + 1;
-        if (fromIndex == -1) {
-            fromIndex++;
+    public ArraySet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
+        if (order.compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException();
         }
-        return new ArraySet<>(list.subList(fromIndex, list.size()), comparator, isNatural);
+        return window(binSearch(fromElement, fromInclusive, false), binSearch(toElement, toInclusive, true) + 1);
+    }
+
+    @Override
+    public ArraySet<T> headSet(T toElement, boolean inclusive) {
+        return window(0, binSearch(toElement, inclusive, true) + 1);
+    }
+
+    @Override
+    public ArraySet<T> tailSet(T fromElement, boolean inclusive) {
+        return window(binSearch(fromElement, inclusive, false), size());
+    }
+
+    @Override
+    public ArraySet<T> subSet(T fromElement, T toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public ArraySet<T> headSet(T toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public ArraySet<T> tailSet(T fromElement) {
+        return tailSet(fromElement, true);
     }
 
     @Override
     public Comparator<? super T> comparator() {
-        return isNatural ? null : comparator;
+        return comparator;
     }
 
 
     @Override
     public T first() {
-        if (list.isEmpty()) {
+        if (isEmpty()) {
             throw new NoSuchElementException();
         }
-        return list.get(0);
+        return element(0);
     }
 
     @Override
     public T last() {
-        if (list.isEmpty()) {
+        if (isEmpty()) {
             throw new NoSuchElementException();
         }
-        return list.get(list.size() - 1);
+        return element(size() - 1);
     }
 
     @Override
     public int size() {
-        return list.size();
+        return to - from;
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public boolean contains(Object o) {
-        return Collections.binarySearch(list, (T) o, comparator) >= 0;
+        T key = (T) o;
+        return (filter == null || filter.mightContain(key)) && search(key) >= 0;
+    }
+
+    private class WindowSpliterator implements Spliterator<T> {
+
+        private int position;
+        private final int end;
+
+        WindowSpliterator(int position, int end) {
+            this.position = position;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (position >= end) {
+                return false;
+            }
+            action.accept(element(position++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            while (position < end) {
+                action.accept(element(position++));
+            }
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            int middle = (position + end) >>> 1;
+            if (middle <= position) {
+                return null;
+            }
+            Spliterator<T> prefix = new WindowSpliterator(position, middle);
+            position = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - position;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | DISTINCT | SIZED | SUBSIZED | IMMUTABLE;
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            return comparator;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,75 @@
+package ru.ifmo.ctddev.maltsev.arrayset;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+
+/**
+ * Bloom filter over the elements of an {@link ArraySet}, used to reject definite misses before the binary search.
+ * Counts how many probes it rejected and how many it passed on to the search.
+ */
+public class BloomFilter<T> {
+
+    private final long[] bits;
+    private final int bitCount;
+    private final int hashCount;
+    private final ToIntFunction<? super T> hash;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder passed = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    BloomFilter(Object[] elements, int from, int to, double falsePositiveRate, ToIntFunction<? super T> hash) {
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("False positive rate should be in (0, 1): " + falsePositiveRate);
+        }
+        int n = Math.max(to - from, 1);
+        long optimalBits = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        bitCount = (int) Math.min(Math.max(optimalBits, Long.SIZE), Integer.MAX_VALUE - Long.SIZE);
+        hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+        bits = new long[(bitCount + Long.SIZE - 1) / Long.SIZE];
+        this.hash = hash;
+        for (int j = from; j < to; j++) {
+            long h = mix((T) elements[j]);
+            for (int i = 0; i < hashCount; i++) {
+                int bit = bit(h, i);
+                bits[bit >>> 6] |= 1L << bit;
+            }
+        }
+    }
+
+    private long mix(T element) {
+        long h = hash.applyAsInt(element) * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    // i-th probe derived from two halves of one 64-bit hash (Kirsch-Mitzenmacher)
+    private int bit(long h, int i) {
+        return (((int) h + i * ((int) (h >>> 32) | 1)) & Integer.MAX_VALUE) % bitCount;
+    }
+
+    boolean mightContain(T element) {
+        long h = mix(element);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = bit(h, i);
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                rejected.increment();
+                return false;
+            }
+        }
+        passed.increment();
+        return true;
+    }
+
+    /**
+     * Number of probes answered by the filter alone.
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Number of probes that the filter passed on to the binary search, including its false positives.
+     */
+    public long getPassed() {
+        return passed.sum();
+    }
+}
@@ -0,0 +1,160 @@
+package ru.ifmo.ctddev.maltsev.arrayset;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Thread-safe sorted set that publishes immutable {@link ArraySet} snapshots through an {@link AtomicReference}.
+ * <p>
+ * Readers take the current snapshot with a single volatile read and never block. Writers build the next snapshot
+ * with a linear merge against the current one and publish it by compare-and-set, retrying if another writer
+ * got there first; batch operations such as {@link #addAll} cost one merge for the whole batch.
+ * Iterators and views work on the snapshot they were created from.
+ */
+public class ConcurrentArraySet<T extends Comparable<? super T>> extends AbstractSet<T> implements SortedSet<T> {
+
+    private final Comparator<? super T> comparator;
+    private final AtomicReference<ArraySet<T>> current;
+
+    public ConcurrentArraySet() {
+        this(Collections.emptyList());
+    }
+
+    public ConcurrentArraySet(Collection<? extends T> collection) {
+        this(collection, null);
+    }
+
+    public ConcurrentArraySet(Collection<? extends T> collection, Comparator<? super T> comparator) {
+        this.comparator = comparator;
+        this.current = new AtomicReference<>(new ArraySet<>(collection, comparator));
+    }
+
+    public ArraySet<T> snapshot() {
+        return current.get();
+    }
+
+    /**
+     * Atomically replaces the whole contents, e.g. with a set rebuilt from a new configuration.
+     */
+    public void replace(Collection<? extends T> collection) {
+        current.set(new ArraySet<>(collection, comparator));
+    }
+
+    private boolean update(UnaryOperator<ArraySet<T>> function) {
+        while (true) {
+            ArraySet<T> snapshot = current.get();
+            ArraySet<T> next = function.apply(snapshot);
+            if (next.size() == snapshot.size()) {
+                return false;
+            }
+            if (current.compareAndSet(snapshot, next)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean add(T t) {
+        return addAll(Collections.singletonList(t));
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return removeAll(Collections.singletonList(o));
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends T> c) {
+        ArraySet<T> batch = new ArraySet<>(c, comparator);
+        return update(snapshot -> snapshot.union(batch));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean removeAll(Collection<?> c) {
+        ArraySet<T> batch = new ArraySet<>((Collection<? extends T>) c, comparator);
+        return update(snapshot -> snapshot.difference(batch));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean retainAll(Collection<?> c) {
+        ArraySet<T> batch = new ArraySet<>((Collection<? extends T>) c, comparator);
+        return update(snapshot -> snapshot.intersection(batch));
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super T> filter) {
+        return update(snapshot -> {
+            List<T> kept = new ArrayList<>(snapshot.size());
+            for (T element : snapshot) {
+                if (!filter.test(element)) {
+                    kept.add(element);
+                }
+            }
+            return new ArraySet<>(kept, comparator);
+        });
+    }
+
+    @Override
+    public void clear() {
+        replace(Collections.emptyList());
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return current.get().contains(o);
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        return current.get().containsAll(c);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return current.get().iterator();
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return current.get().spliterator();
+    }
+
+    @Override
+    public SortedSet<T> subSet(T fromElement, T toElement) {
+        return current.get().subSet(fromElement, toElement);
+    }
+
+    @Override
+    public SortedSet<T> headSet(T toElement) {
+        return current.get().headSet(toElement);
+    }
+
+    @Override
+    public SortedSet<T> tailSet(T fromElement) {
+        return current.get().tailSet(fromElement);
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public T first() {
+        return current.get().first();
+    }
+
+    @Override
+    public T last() {
+        return current.get().last();
+    }
+
+    @Override
+    public int size() {
+        return current.get().size();
+    }
+}
@@ -0,0 +1,93 @@
+package ru.ifmo.ctddev.maltsev.arrayset;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hand-run contention benchmark: reader throughput of {@link ConcurrentArraySet#contains} with no writer, with a
+ * writer that adds and removes an element every millisecond and with a writer that does so continuously,
+ * next to a {@link Collections#synchronizedSortedSet synchronized} {@link TreeSet} under the same load.
+ * <p>
+ * Usage: {@code ConcurrentArraySetBenchmark [readers]}.
+ */
+public class ConcurrentArraySetBenchmark {
+
+    private static final int SIZE = 100_000;
+    private static final int MILLIS = 2000;
+    private static final long NO_WRITER = -1;
+
+    // keeps the JIT from dropping the lookups
+    private static volatile long sink;
+
+    public static void main(String[] args) throws InterruptedException {
+        int readers = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        List<Integer> elements = new ArrayList<>();
+        for (int i = 0; i < SIZE; i++) {
+            elements.add(2 * i);
+        }
+        for (long pause : new long[]{NO_WRITER, 1_000_000, 0}) {
+            run("ConcurrentArraySet", new ConcurrentArraySet<>(elements), readers, pause);
+            run("synchronized TreeSet", Collections.synchronizedSortedSet(new TreeSet<>(elements)), readers, pause);
+        }
+    }
+
+    private static void run(String name, Set<Integer> set, int readers, long pause) throws InterruptedException {
+        measure(set, readers, pause, MILLIS / 4);
+        long[] result = measure(set, readers, pause, MILLIS);
+        String writer = pause == NO_WRITER ? "none" : pause == 0 ? "continuous" : "every 1 ms";
+        System.out.printf("%-20s readers=%d writer=%-10s reads %,.2f M/s, writes %,d/s%n",
+                name, readers, writer, result[0] / (MILLIS * 1000.0), result[1] * 1000 / MILLIS);
+    }
+
+    private static long[] measure(Set<Integer> set, int readers, long pause, int millis) throws InterruptedException {
+        AtomicBoolean stop = new AtomicBoolean();
+        LongAdder reads = new LongAdder();
+        LongAdder writes = new LongAdder();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < readers; i++) {
+            threads.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+                long found = 0;
+                while (!stop.get()) {
+                    for (int j = 0; j < 256; j++) {
+                        if (set.contains(random.nextInt(2 * SIZE))) {
+                            found++;
+                        }
+                    }
+                    count += 256;
+                }
+                reads.add(count);
+                sink = found;
+            }));
+        }
+        if (pause != NO_WRITER) {
+            threads.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (!stop.get()) {
+                    int key = 2 * random.nextInt(SIZE) + 1;
+                    set.add(key);
+                    set.remove(key);
+                    writes.add(2);
+                    if (pause > 0) {
+                        LockSupport.parkNanos(pause);
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        Thread.sleep(millis);
+        stop.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return new long[]{reads.sum(), writes.sum()};
+    }
+}
@@ -0,0 +1,74 @@
+package ru.ifmo.ctddev.maltsev.arrayset;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Eytzinger (BFS) ordered copy of a sample of a sorted array: the children of node {@code k} are {@code 2k} and
+ * {@code 2k + 1}. The top levels of the implicit tree are packed together, so the first probes of every search hit
+ * the same few cache lines instead of jumping across the whole array.
+ * <p>
+ * Past {@link #MAX_KEYS} elements only every {@code stride}-th element goes into the tree and a lookup finishes
+ * with a binary search over one stride of the sorted array: the deep levels of a full tree are scattered over
+ * memory, which made large indexes slower than a plain binary search.
+ */
+class EytzingerIndex<T> {
+
+    static final int MAX_KEYS = 1 << 12;
+
+    private final Object[] sorted;
+    private final Object[] keys;
+    private final int[] ranks;
+    private final int size;
+    private final int stride;
+    private final int from;
+    private final int to;
+
+    EytzingerIndex(Object[] sorted, int from, int to) {
+        this.sorted = sorted;
+        this.from = from;
+        this.to = to;
+        stride = Math.max(1, (int) (((long) to - from + MAX_KEYS - 1) / MAX_KEYS));
+        size = (int) (((long) to - from + stride - 1) / stride);
+        keys = new Object[size + 1];
+        ranks = new int[size + 1];
+        fill(1, 0);
+    }
+
+    // lays out the subtree rooted at k in order starting from sample number next, returns the next unused sample
+    private int fill(int k, int next) {
+        if (k <= size) {
+            next = fill(2 * k, next);
+            ranks[k] = from + next * stride;
+            keys[k] = sorted[ranks[k]];
+            next = fill(2 * k + 1, next + 1);
+        }
+        return next;
+    }
+
+    /**
+     * Same contract as {@link java.util.Arrays#binarySearch(Object[], int, int, Object, Comparator)}
+     * over the range of the source array the index was built from.
+     */
+    @SuppressWarnings("unchecked")
+    int binarySearch(T key, Comparator<? super T> comparator) {
+        int k = 1;
+        while (k <= size) {
+            k = 2 * k + (comparator.compare((T) keys[k], key) < 0 ? 1 : 0);
+        }
+        k >>= Integer.numberOfTrailingZeros(~k) + 1;
+        // k is the first sample not less than key, and the sample one stride before it is less than key
+        int low;
+        int high;
+        if (k == 0) {
+            low = from + (size - 1) * stride + 1;
+            high = to;
+        } else if (comparator.compare((T) keys[k], key) == 0) {
+            return ranks[k];
+        } else {
+            low = Math.max(from, ranks[k] - stride + 1);
+            high = ranks[k];
+        }
+        return Arrays.binarySearch((T[]) sorted, low, high, key, comparator);
+    }
+}
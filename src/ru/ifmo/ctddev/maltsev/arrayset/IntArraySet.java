@@ -0,0 +1,148 @@
+package ru.ifmo.ctddev.maltsev.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable sorted set of {@code int} values backed by a sorted {@code int[]}.
+ * Views returned by {@link #headSet}, {@link #tailSet} and {@link #subSet} share the array
+ * and differ only by the {@code [from, to)} window.
+ */
+public class IntArraySet extends AbstractSet<Integer> implements SortedSet<Integer> {
+
+    private final int[] array;
+    private final int from;
+    private final int to;
+
+    public IntArraySet() {
+        this(new int[0], 0, 0);
+    }
+
+    public IntArraySet(int[] values) {
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (size == 0 || sorted[size - 1] != sorted[i]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        array = (size == sorted.length) ? sorted : Arrays.copyOf(sorted, size);
+        from = 0;
+        to = size;
+    }
+
+    public IntArraySet(Collection<Integer> collection) {
+        this(collection.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private IntArraySet(int[] array, int from, int to) {
+        this.array = array;
+        this.from = from;
+        this.to = to;
+    }
+
+    private int lowerBound(int key) {
+        int left = from;
+        int right = to;
+        while (left < right) {
+            int middle = (left + right) >>> 1;
+            if (array[middle] < key) {
+                left = middle + 1;
+            } else {
+                right = middle;
+            }
+        }
+        return left;
+    }
+
+    public boolean contains(int key) {
+        int index = lowerBound(key);
+        return index < to && array[index] == key;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Integer && contains((int) (Integer) o);
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int index = from;
+
+            @Override
+            public boolean hasNext() {
+                return index < to;
+            }
+
+            @Override
+            public int nextInt() {
+                if (index >= to) {
+                    throw new NoSuchElementException();
+                }
+                return array[index++];
+            }
+        };
+    }
+
+    @Override
+    public Spliterator.OfInt spliterator() {
+        return Spliterators.spliterator(array, from, to, Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.IMMUTABLE);
+    }
+
+    public int[] toIntArray() {
+        return Arrays.copyOfRange(array, from, to);
+    }
+
+    @Override
+    public IntArraySet subSet(Integer fromElement, Integer toElement) {
+        if (fromElement > toElement) {
+            throw new IllegalArgumentException();
+        }
+        return new IntArraySet(array, lowerBound(fromElement), lowerBound(toElement));
+    }
+
+    @Override
+    public IntArraySet headSet(Integer toElement) {
+        return new IntArraySet(array, from, lowerBound(toElement));
+    }
+
+    @Override
+    public IntArraySet tailSet(Integer fromElement) {
+        return new IntArraySet(array, lowerBound(fromElement), to);
+    }
+
+    @Override
+    public Comparator<? super Integer> comparator() {
+        return null;
+    }
+
+    public int firstInt() {
+        if (from == to) {
+            throw new NoSuchElementException();
+        }
+        return array[from];
+    }
+
+    public int lastInt() {
+        if (from == to) {
+            throw new NoSuchElementException();
+        }
+        return array[to - 1];
+    }
+
+    @Override
+    public Integer first() {
+        return firstInt();
+    }
+
+    @Override
+    public Integer last() {
+        return lastInt();
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+}
@@ -0,0 +1,148 @@
+package ru.ifmo.ctddev.maltsev.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable sorted set of {@code long} values backed by a sorted {@code long[]}.
+ * Views returned by {@link #headSet}, {@link #tailSet} and {@link #subSet} share the array
+ * and differ only by the {@code [from, to)} window.
+ */
+public class LongArraySet extends AbstractSet<Long> implements SortedSet<Long> {
+
+    private final long[] array;
+    private final int from;
+    private final int to;
+
+    public LongArraySet() {
+        this(new long[0], 0, 0);
+    }
+
+    public LongArraySet(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (size == 0 || sorted[size - 1] != sorted[i]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        array = (size == sorted.length) ? sorted : Arrays.copyOf(sorted, size);
+        from = 0;
+        to = size;
+    }
+
+    public LongArraySet(Collection<Long> collection) {
+        this(collection.stream().mapToLong(Long::longValue).toArray());
+    }
+
+    private LongArraySet(long[] array, int from, int to) {
+        this.array = array;
+        this.from = from;
+        this.to = to;
+    }
+
+    private int lowerBound(long key) {
+        int left = from;
+        int right = to;
+        while (left < right) {
+            int middle = (left + right) >>> 1;
+            if (array[middle] < key) {
+                left = middle + 1;
+            } else {
+                right = middle;
+            }
+        }
+        return left;
+    }
+
+    public boolean contains(long key) {
+        int index = lowerBound(key);
+        return index < to && array[index] == key;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Long && contains((long) (Long) o);
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            private int index = from;
+
+            @Override
+            public boolean hasNext() {
+                return index < to;
+            }
+
+            @Override
+            public long nextLong() {
+                if (index >= to) {
+                    throw new NoSuchElementException();
+                }
+                return array[index++];
+            }
+        };
+    }
+
+    @Override
+    public Spliterator.OfLong spliterator() {
+        return Spliterators.spliterator(array, from, to, Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.IMMUTABLE);
+    }
+
+    public long[] toLongArray() {
+        return Arrays.copyOfRange(array, from, to);
+    }
+
+    @Override
+    public LongArraySet subSet(Long fromElement, Long toElement) {
+        if (fromElement > toElement) {
+            throw new IllegalArgumentException();
+        }
+        return new LongArraySet(array, lowerBound(fromElement), lowerBound(toElement));
+    }
+
+    @Override
+    public LongArraySet headSet(Long toElement) {
+        return new LongArraySet(array, from, lowerBound(toElement));
+    }
+
+    @Override
+    public LongArraySet tailSet(Long fromElement) {
+        return new LongArraySet(array, lowerBound(fromElement), to);
+    }
+
+    @Override
+    public Comparator<? super Long> comparator() {
+        return null;
+    }
+
+    public long firstLong() {
+        if (from == to) {
+            throw new NoSuchElementException();
+        }
+        return array[from];
+    }
+
+    public long lastLong() {
+        if (from == to) {
+            throw new NoSuchElementException();
+        }
+        return array[to - 1];
+    }
+
+    @Override
+    public Long first() {
+        return firstLong();
+    }
+
+    @Override
+    public Long last() {
+        return lastLong();
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+}
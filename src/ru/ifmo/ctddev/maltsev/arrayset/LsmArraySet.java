@@ -0,0 +1,472 @@
+package ru.ifmo.ctddev.maltsev.arrayset;
+
+import java.util.*;
+
+/**
+ * Mutable sorted set built as a log-structured merge tree of immutable {@link ArraySet} runs.
+ * <p>
+ * Writes go to a small sorted buffer. A full buffer is flushed into a new run of added elements and removal
+ * tombstones, and runs of similar size are merged, so every element takes part in O(log n) linear merges.
+ * Lookups check the buffer and then the runs from newest to oldest.
+ * <p>
+ * Iteration, {@link #first()}, {@link #last()} and the views merge the buffer and the runs on the fly, the newest
+ * source deciding for each element, so reads never wait for a compaction. Views are backed by this set; their
+ * {@code size()} counts the elements in range. Not thread-safe.
+ */
+public class LsmArraySet<T extends Comparable<? super T>> extends AbstractSet<T> implements SortedSet<T> {
+
+    private static final int BUFFER_SIZE = 1024;
+    private static final int MAX_RUNS = 16;
+
+    private final Comparator<? super T> comparator;
+    private final Comparator<? super T> order;
+    private final NavigableMap<T, Boolean> buffer;
+    private final List<Run<T>> runs = new ArrayList<>();
+    private final View all = new View(null, null);
+    private int size;
+    private int flushes;
+
+    public LsmArraySet() {
+        this((Comparator<? super T>) null);
+    }
+
+    public LsmArraySet(Comparator<? super T> comparator) {
+        this.comparator = comparator;
+        this.order = (comparator == null) ? Comparator.<T>naturalOrder() : comparator;
+        this.buffer = new TreeMap<>(comparator);
+    }
+
+    public LsmArraySet(Collection<? extends T> collection) {
+        this(collection, null);
+    }
+
+    public LsmArraySet(Collection<? extends T> collection, Comparator<? super T> comparator) {
+        this(comparator);
+        ArraySet<T> elements = new ArraySet<>(collection, comparator);
+        if (!elements.isEmpty()) {
+            runs.add(new Run<>(elements, empty()));
+        }
+        size = elements.size();
+    }
+
+    @Override
+    public boolean add(T t) {
+        if (contains(t)) {
+            return false;
+        }
+        write(t, true);
+        size++;
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object o) {
+        if (!contains(o)) {
+            return false;
+        }
+        write((T) o, false);
+        size--;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        buffer.clear();
+        runs.clear();
+        size = 0;
+        flushes++;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+        T key = (T) o;
+        Boolean buffered = buffer.get(key);
+        if (buffered != null) {
+            return buffered;
+        }
+        for (int i = runs.size() - 1; i >= 0; i--) {
+            Run<T> run = runs.get(i);
+            if (run.added.contains(key)) {
+                return true;
+            }
+            if (run.removed.contains(key)) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private void write(T key, boolean present) {
+        // TreeMap.put keeps the old key object, which differs from key under a comparator inconsistent with equals
+        buffer.remove(key);
+        buffer.put(key, present);
+        if (buffer.size() >= BUFFER_SIZE) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        List<T> added = new ArrayList<>();
+        List<T> removed = new ArrayList<>();
+        for (Map.Entry<T, Boolean> entry : buffer.entrySet()) {
+            (entry.getValue() ? added : removed).add(entry.getKey());
+        }
+        buffer.clear();
+        flushes++;
+        runs.add(new Run<>(new ArraySet<>(added, comparator), new ArraySet<>(removed, comparator)));
+        while (runs.size() > 1 && runs.get(runs.size() - 2).size() <= 2 * runs.get(runs.size() - 1).size()) {
+            mergeLastRuns();
+        }
+        if (runs.size() > MAX_RUNS) {
+            compact();
+        }
+    }
+
+    private void mergeLastRuns() {
+        Run<T> newer = runs.remove(runs.size() - 1);
+        Run<T> older = runs.remove(runs.size() - 1);
+        ArraySet<T> added = newer.added.union(older.added.difference(newer.removed));
+        ArraySet<T> removed;
+        if (runs.isEmpty()) {
+            removed = empty();
+        } else {
+            removed = newer.removed.union(older.removed.difference(newer.added));
+        }
+        runs.add(new Run<>(added, removed));
+    }
+
+    /**
+     * Flushes the buffer and merges all runs into one, dropping tombstones.
+     */
+    public void compact() {
+        flush();
+        while (runs.size() > 1) {
+            mergeLastRuns();
+        }
+        if (runs.size() == 1 && !runs.get(0).removed.isEmpty()) {
+            runs.set(0, new Run<>(runs.get(0).added, empty()));
+        }
+    }
+
+    private ArraySet<T> empty() {
+        return new ArraySet<>(Collections.<T>emptyList(), comparator);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return all.iterator();
+    }
+
+    @Override
+    public SortedSet<T> subSet(T fromElement, T toElement) {
+        return all.subSet(fromElement, toElement);
+    }
+
+    @Override
+    public SortedSet<T> headSet(T toElement) {
+        return all.headSet(toElement);
+    }
+
+    @Override
+    public SortedSet<T> tailSet(T fromElement) {
+        return all.tailSet(fromElement);
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public T first() {
+        return all.first();
+    }
+
+    @Override
+    public T last() {
+        return all.last();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private static class Run<T extends Comparable<? super T>> {
+
+        private final ArraySet<T> added;
+        private final ArraySet<T> removed;
+
+        Run(ArraySet<T> added, ArraySet<T> removed) {
+            this.added = added;
+            this.removed = removed;
+        }
+
+        int size() {
+            return added.size() + removed.size();
+        }
+    }
+
+    // elements in [from, to), a null bound is unbounded
+    private class View extends AbstractSet<T> implements SortedSet<T> {
+
+        private final T from;
+        private final T to;
+
+        View(T from, T to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        private boolean inRange(T key) {
+            return (from == null || order.compare(key, from) >= 0) && (to == null || order.compare(key, to) < 0);
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new MergeIterator(from, to, false);
+        }
+
+        @Override
+        public int size() {
+            if (from == null && to == null) {
+                return size;
+            }
+            int count = 0;
+            for (Iterator<T> i = iterator(); i.hasNext(); i.next()) {
+                count++;
+            }
+            return count;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return !iterator().hasNext();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean contains(Object o) {
+            return inRange((T) o) && LsmArraySet.this.contains(o);
+        }
+
+        @Override
+        public boolean add(T t) {
+            if (!inRange(t)) {
+                throw new IllegalArgumentException("key out of range");
+            }
+            return LsmArraySet.this.add(t);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean remove(Object o) {
+            return inRange((T) o) && LsmArraySet.this.remove(o);
+        }
+
+        @Override
+        public SortedSet<T> subSet(T fromElement, T toElement) {
+            if (order.compare(fromElement, toElement) > 0) {
+                throw new IllegalArgumentException("fromKey > toKey");
+            }
+            return tailSet(fromElement).headSet(toElement);
+        }
+
+        @Override
+        public SortedSet<T> headSet(T toElement) {
+            if (to != null && order.compare(toElement, to) > 0 || from != null && order.compare(toElement, from) < 0) {
+                throw new IllegalArgumentException("toKey out of range");
+            }
+            return new View(from, toElement);
+        }
+
+        @Override
+        public SortedSet<T> tailSet(T fromElement) {
+            if (from != null && order.compare(fromElement, from) < 0 || to != null && order.compare(fromElement, to) > 0) {
+                throw new IllegalArgumentException("fromKey out of range");
+            }
+            return new View(fromElement, to);
+        }
+
+        @Override
+        public Comparator<? super T> comparator() {
+            return comparator;
+        }
+
+        @Override
+        public T first() {
+            return new MergeIterator(from, to, false).next();
+        }
+
+        @Override
+        public T last() {
+            return new MergeIterator(from, to, true).next();
+        }
+    }
+
+    /**
+     * K-way merge of the buffer and the added and removed sets of every run that returns the elements whose newest
+     * entry is not a tombstone. Rebuilt after the last returned element when a flush changes the runs.
+     */
+    private class MergeIterator implements Iterator<T> {
+
+        private final T from;
+        private final T to;
+        private final boolean descending;
+        private final Comparator<? super T> direction;
+        private PriorityQueue<Source> sources;
+        private int flushes;
+        private T next;
+        private T last;
+        private boolean canRemove;
+
+        MergeIterator(T from, T to, boolean descending) {
+            this.from = from;
+            this.to = to;
+            this.descending = descending;
+            this.direction = descending ? Collections.reverseOrder(order) : order;
+            start(null);
+            advance();
+        }
+
+        // positions every source at its first entry in range that comes strictly after the key, or at the start
+        private void start(T after) {
+            flushes = LsmArraySet.this.flushes;
+            sources = new PriorityQueue<>(2 * runs.size() + 1, (x, y) -> {
+                int compare = direction.compare(x.key, y.key);
+                return compare != 0 ? compare : Integer.compare(y.age, x.age);
+            });
+            offer(new BufferSource(after));
+            for (int i = 0; i < runs.size(); i++) {
+                offer(new RunSource(runs.get(i).added, true, i, after));
+                offer(new RunSource(runs.get(i).removed, false, i, after));
+            }
+        }
+
+        private void offer(Source source) {
+            if (source.key != null) {
+                sources.add(source);
+            }
+        }
+
+        private void advance() {
+            if (flushes != LsmArraySet.this.flushes) {
+                start(last);
+            }
+            next = null;
+            while (next == null && !sources.isEmpty()) {
+                Source newest = sources.poll();
+                T key = newest.key;
+                boolean present = newest.present;
+                step(newest);
+                while (!sources.isEmpty() && order.compare(sources.peek().key, key) == 0) {
+                    step(sources.poll());
+                }
+                if (present) {
+                    next = key;
+                }
+            }
+        }
+
+        private void step(Source source) {
+            source.step();
+            offer(source);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (flushes != LsmArraySet.this.flushes) {
+                advance();
+            }
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            canRemove = true;
+            advance();
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (!canRemove) {
+                throw new IllegalStateException();
+            }
+            LsmArraySet.this.remove(last);
+            canRemove = false;
+        }
+
+        private abstract class Source {
+            T key;
+            boolean present;
+            int age;
+
+            abstract void step();
+        }
+
+        private class BufferSource extends Source {
+
+            BufferSource(T after) {
+                age = Integer.MAX_VALUE;
+                Map.Entry<T, Boolean> entry;
+                if (after != null) {
+                    entry = descending ? buffer.lowerEntry(after) : buffer.higherEntry(after);
+                } else if (descending) {
+                    entry = (to == null) ? buffer.lastEntry() : buffer.lowerEntry(to);
+                } else {
+                    entry = (from == null) ? buffer.firstEntry() : buffer.ceilingEntry(from);
+                }
+                set(entry);
+            }
+
+            private void set(Map.Entry<T, Boolean> entry) {
+                key = (entry == null || !(descending ? from == null || order.compare(entry.getKey(), from) >= 0
+                        : to == null || order.compare(entry.getKey(), to) < 0)) ? null : entry.getKey();
+                present = entry != null && entry.getValue();
+            }
+
+            // the buffer may change under an iterator removal, so step by key instead of with a map iterator
+            @Override
+            void step() {
+                set(descending ? buffer.lowerEntry(key) : buffer.higherEntry(key));
+            }
+        }
+
+        private class RunSource extends Source {
+
+            private final Iterator<T> iterator;
+
+            RunSource(ArraySet<T> set, boolean present, int age, T after) {
+                this.present = present;
+                this.age = age;
+                NavigableSet<T> range = set;
+                if (from != null) {
+                    range = range.tailSet(from, true);
+                }
+                if (to != null) {
+                    range = range.headSet(to, false);
+                }
+                if (after != null) {
+                    range = descending ? range.headSet(after, false) : range.tailSet(after, false);
+                }
+                iterator = descending ? range.descendingIterator() : range.iterator();
+                step();
+            }
+
+            @Override
+            void step() {
+                key = iterator.hasNext() ? iterator.next() : null;
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package ru.ifmo.ctddev.maltsev.arrayset;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Sorted set of {@code long} values served directly from a memory-mapped snapshot file.
+ * <p>
+ * The file holds a magic number, the element count and the sorted distinct values, all big-endian.
+ * Opening a snapshot maps it read-only without reading it, so pages are loaded lazily and shared
+ * between processes through the page cache.
+ */
+public class MappedLongArraySet extends AbstractSet<Long> implements SortedSet<Long> {
+
+    private static final int MAGIC = 0x4C534554;
+    private static final int HEADER_SIZE = 8;
+
+    private final LongBuffer keys;
+    private final int from;
+    private final int to;
+
+    private MappedLongArraySet(LongBuffer keys, int from, int to) {
+        this.keys = keys;
+        this.from = from;
+        this.to = to;
+    }
+
+    public static void write(LongArraySet set, Path file) throws IOException {
+        long[] values = set.toLongArray();
+        long bytes = HEADER_SIZE + (long) values.length * Long.BYTES;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IOException("Long set snapshot exceeds the 2 GB mapping limit: " + bytes + " bytes");
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            buffer.putInt(MAGIC).putInt(values.length);
+            buffer.asLongBuffer().put(values);
+            buffer.force();
+        }
+    }
+
+    public static MappedLongArraySet open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a long set snapshot: " + file);
+            }
+            int size = buffer.getInt(4);
+            if (buffer.limit() != HEADER_SIZE + (long) size * Long.BYTES) {
+                throw new IOException("Truncated long set snapshot: " + file);
+            }
+            buffer.position(HEADER_SIZE);
+            ByteBuffer data = buffer.slice();
+            return new MappedLongArraySet(data.asLongBuffer(), 0, size);
+        }
+    }
+
+    private int lowerBound(long key) {
+        int left = from;
+        int right = to;
+        while (left < right) {
+            int middle = (left + right) >>> 1;
+            if (keys.get(middle) < key) {
+                left = middle + 1;
+            } else {
+                right = middle;
+            }
+        }
+        return left;
+    }
+
+    public boolean contains(long key) {
+        int index = lowerBound(key);
+        return index < to && keys.get(index) == key;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Long && contains((long) (Long) o);
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            private int index = from;
+
+            @Override
+            public boolean hasNext() {
+                return index < to;
+            }
+
+            @Override
+            public long nextLong() {
+                if (index >= to) {
+                    throw new NoSuchElementException();
+                }
+                return keys.get(index++);
+            }
+        };
+    }
+
+    @Override
+    public MappedLongArraySet subSet(Long fromElement, Long toElement) {
+        if (fromElement > toElement) {
+            throw new IllegalArgumentException();
+        }
+        return new MappedLongArraySet(keys, lowerBound(fromElement), lowerBound(toElement));
+    }
+
+    @Override
+    public MappedLongArraySet headSet(Long toElement) {
+        return new MappedLongArraySet(keys, from, lowerBound(toElement));
+    }
+
+    @Override
+    public MappedLongArraySet tailSet(Long fromElement) {
+        return new MappedLongArraySet(keys, lowerBound(fromElement), to);
+    }
+
+    @Override
+    public Comparator<? super Long> comparator() {
+        return null;
+    }
+
+    @Override
+    public Long first() {
+        if (from == to) {
+            throw new NoSuchElementException();
+        }
+        return keys.get(from);
+    }
+
+    @Override
+    public Long last() {
+        if (from == to) {
+            throw new NoSuchElementException();
+        }
+        return keys.get(to - 1);
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+}
@@ -0,0 +1,198 @@
+package ru.ifmo.ctddev.maltsev.arrayset;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Sorted set of strings in natural order served directly from a memory-mapped snapshot file.
+ * <p>
+ * The file holds a magic number, the element count, {@code count + 1} offsets and the UTF-16 characters of all
+ * strings back to back; string {@code i} spans offsets {@code i} to {@code i + 1}. Lookups compare characters
+ * in the mapping and only {@link #first()}, {@link #last()} and iteration materialize {@link String} objects.
+ */
+public class MappedStringArraySet extends AbstractSet<String> implements SortedSet<String> {
+
+    private static final int MAGIC = 0x53534554;
+    private static final int HEADER_SIZE = 8;
+
+    private final IntBuffer offsets;
+    private final CharBuffer chars;
+    private final int from;
+    private final int to;
+
+    private MappedStringArraySet(IntBuffer offsets, CharBuffer chars, int from, int to) {
+        this.offsets = offsets;
+        this.chars = chars;
+        this.from = from;
+        this.to = to;
+    }
+
+    public static void write(Collection<String> collection, Path file) throws IOException {
+        String[] strings = collection.toArray(new String[0]);
+        Arrays.sort(strings);
+        int size = 0;
+        long length = 0;
+        for (int i = 0; i < strings.length; i++) {
+            if (size == 0 || !strings[size - 1].equals(strings[i])) {
+                strings[size++] = strings[i];
+                length += strings[i].length();
+            }
+        }
+        long offsetsSize = (size + 1L) * Integer.BYTES;
+        long bytes = HEADER_SIZE + offsetsSize + length * Character.BYTES;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IOException("String set snapshot exceeds the 2 GB mapping limit: " + bytes + " bytes");
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            buffer.putInt(MAGIC).putInt(size);
+            IntBuffer offsets = buffer.asIntBuffer();
+            buffer.position((int) (HEADER_SIZE + offsetsSize));
+            CharBuffer chars = buffer.asCharBuffer();
+            int offset = 0;
+            for (int i = 0; i < size; i++) {
+                offsets.put(offset);
+                chars.put(strings[i]);
+                offset += strings[i].length();
+            }
+            offsets.put(offset);
+            buffer.force();
+        }
+    }
+
+    public static MappedStringArraySet open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a string set snapshot: " + file);
+            }
+            int size = buffer.getInt(4);
+            long offsetsSize = (size + 1L) * Integer.BYTES;
+            if (buffer.limit() < HEADER_SIZE + offsetsSize
+                    || buffer.limit() != HEADER_SIZE + offsetsSize + (long) buffer.getInt((int) (HEADER_SIZE + offsetsSize) - Integer.BYTES) * Character.BYTES) {
+                throw new IOException("Truncated string set snapshot: " + file);
+            }
+            buffer.position(HEADER_SIZE);
+            IntBuffer offsets = buffer.slice().asIntBuffer();
+            buffer.position((int) (HEADER_SIZE + offsetsSize));
+            CharBuffer chars = buffer.slice().asCharBuffer();
+            return new MappedStringArraySet(offsets, chars, 0, size);
+        }
+    }
+
+    private int compare(int index, String key) {
+        int offset = offsets.get(index);
+        int length = offsets.get(index + 1) - offset;
+        int limit = Math.min(length, key.length());
+        for (int i = 0; i < limit; i++) {
+            char c = chars.get(offset + i);
+            if (c != key.charAt(i)) {
+                return c - key.charAt(i);
+            }
+        }
+        return length - key.length();
+    }
+
+    private String get(int index) {
+        int offset = offsets.get(index);
+        char[] string = new char[offsets.get(index + 1) - offset];
+        for (int i = 0; i < string.length; i++) {
+            string[i] = chars.get(offset + i);
+        }
+        return new String(string);
+    }
+
+    private int lowerBound(String key) {
+        int left = from;
+        int right = to;
+        while (left < right) {
+            int middle = (left + right) >>> 1;
+            if (compare(middle, key) < 0) {
+                left = middle + 1;
+            } else {
+                right = middle;
+            }
+        }
+        return left;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String)) {
+            return false;
+        }
+        int index = lowerBound((String) o);
+        return index < to && compare(index, (String) o) == 0;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int index = from;
+
+            @Override
+            public boolean hasNext() {
+                return index < to;
+            }
+
+            @Override
+            public String next() {
+                if (index >= to) {
+                    throw new NoSuchElementException();
+                }
+                return get(index++);
+            }
+        };
+    }
+
+    @Override
+    public MappedStringArraySet subSet(String fromElement, String toElement) {
+        if (fromElement.compareTo(toElement) > 0) {
+            throw new IllegalArgumentException();
+        }
+        return new MappedStringArraySet(offsets, chars, lowerBound(fromElement), lowerBound(toElement));
+    }
+
+    @Override
+    public MappedStringArraySet headSet(String toElement) {
+        return new MappedStringArraySet(offsets, chars, from, lowerBound(toElement));
+    }
+
+    @Override
+    public MappedStringArraySet tailSet(String fromElement) {
+        return new MappedStringArraySet(offsets, chars, lowerBound(fromElement), to);
+    }
+
+    @Override
+    public Comparator<? super String> comparator() {
+        return null;
+    }
+
+    @Override
+    public String first() {
+        if (from == to) {
+            throw new NoSuchElementException();
+        }
+        return get(from);
+    }
+
+    @Override
+    public String last() {
+        if (from == to) {
+            throw new NoSuchElementException();
+        }
+        return get(to - 1);
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+}
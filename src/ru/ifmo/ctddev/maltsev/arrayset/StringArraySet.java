@@ -0,0 +1,280 @@
+package ru.ifmo.ctddev.maltsev.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable sorted set of strings in natural order, front-coded in blocks of {@value #BLOCK_SIZE} strings.
+ * <p>
+ * The first string of every block is stored whole, each following one as the length of the prefix it shares
+ * with its predecessor and the remaining suffix. Lengths are written as 15-bit varints into the same {@code char[]}.
+ * Lookups binary search the block headers and then decode at most one block.
+ */
+public class StringArraySet extends AbstractSet<String> implements SortedSet<String> {
+
+    private static final int BLOCK_SIZE = 16;
+
+    private final char[] data;
+    private final int[] blocks;
+    private final int from;
+    private final int to;
+
+    public StringArraySet() {
+        this(Collections.emptyList());
+    }
+
+    public StringArraySet(Collection<String> collection) {
+        String[] strings = collection.toArray(new String[0]);
+        Arrays.sort(strings);
+        int size = 0;
+        for (int i = 0; i < strings.length; i++) {
+            if (size == 0 || !strings[size - 1].equals(strings[i])) {
+                strings[size++] = strings[i];
+            }
+        }
+
+        blocks = new int[(size + BLOCK_SIZE - 1) / BLOCK_SIZE];
+        StringBuilder encoded = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            String string = strings[i];
+            if (i % BLOCK_SIZE == 0) {
+                blocks[i / BLOCK_SIZE] = encoded.length();
+                writeLength(encoded, string.length());
+                encoded.append(string);
+            } else {
+                String previous = strings[i - 1];
+                int prefix = 0;
+                int limit = Math.min(previous.length(), string.length());
+                while (prefix < limit && previous.charAt(prefix) == string.charAt(prefix)) {
+                    prefix++;
+                }
+                writeLength(encoded, prefix);
+                writeLength(encoded, string.length() - prefix);
+                encoded.append(string, prefix, string.length());
+            }
+        }
+        data = new char[encoded.length()];
+        encoded.getChars(0, data.length, data, 0);
+        from = 0;
+        to = size;
+    }
+
+    private StringArraySet(char[] data, int[] blocks, int from, int to) {
+        this.data = data;
+        this.blocks = blocks;
+        this.from = from;
+        this.to = to;
+    }
+
+    private static void writeLength(StringBuilder encoded, int length) {
+        while (length >= 0x8000) {
+            encoded.append((char) (length & 0x7FFF | 0x8000));
+            length >>>= 15;
+        }
+        encoded.append((char) length);
+    }
+
+    private static int compare(CharSequence x, String y) {
+        int limit = Math.min(x.length(), y.length());
+        for (int i = 0; i < limit; i++) {
+            if (x.charAt(i) != y.charAt(i)) {
+                return x.charAt(i) - y.charAt(i);
+            }
+        }
+        return x.length() - y.length();
+    }
+
+    private int compareHeader(int block, String key) {
+        int position = blocks[block];
+        int length = 0;
+        for (int shift = 0; ; shift += 15) {
+            char c = data[position++];
+            length |= (c & 0x7FFF) << shift;
+            if (c < 0x8000) {
+                break;
+            }
+        }
+        int limit = Math.min(length, key.length());
+        for (int i = 0; i < limit; i++) {
+            if (data[position + i] != key.charAt(i)) {
+                return data[position + i] - key.charAt(i);
+            }
+        }
+        return length - key.length();
+    }
+
+    // same contract as Arrays.binarySearch over all encoded strings, ignoring the window
+    private int search(String key) {
+        int left = 0;
+        int right = blocks.length - 1;
+        while (left <= right) {
+            int middle = (left + right) >>> 1;
+            int compare = compareHeader(middle, key);
+            if (compare < 0) {
+                left = middle + 1;
+            } else if (compare > 0) {
+                right = middle - 1;
+            } else {
+                return middle * BLOCK_SIZE;
+            }
+        }
+        if (right < 0) {
+            return -1;
+        }
+        Cursor cursor = new Cursor(right);
+        cursor.advance();
+        while (cursor.hasNext() && cursor.index < (right + 1) * BLOCK_SIZE) {
+            cursor.advance();
+            int compare = compare(cursor.current, key);
+            if (compare == 0) {
+                return cursor.index - 1;
+            } else if (compare > 0) {
+                return -cursor.index;
+            }
+        }
+        return -cursor.index - 1;
+    }
+
+    private int lowerBound(String key) {
+        int position = search(key);
+        if (position < 0) {
+            position = -position - 1;
+        }
+        return Math.min(Math.max(position, from), to);
+    }
+
+    private String decode(int index) {
+        Cursor cursor = new Cursor(index / BLOCK_SIZE);
+        while (cursor.index <= index) {
+            cursor.advance();
+        }
+        return cursor.current.toString();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String)) {
+            return false;
+        }
+        int position = search((String) o);
+        return position >= from && position < to;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private final Cursor cursor = new Cursor(from / BLOCK_SIZE);
+
+            {
+                while (cursor.index < from) {
+                    cursor.advance();
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return cursor.index < to;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                cursor.advance();
+                return cursor.current.toString();
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<String> spliterator() {
+        return Spliterators.spliterator(this, Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.IMMUTABLE);
+    }
+
+    @Override
+    public StringArraySet subSet(String fromElement, String toElement) {
+        if (fromElement.compareTo(toElement) > 0) {
+            throw new IllegalArgumentException();
+        }
+        return new StringArraySet(data, blocks, lowerBound(fromElement), lowerBound(toElement));
+    }
+
+    @Override
+    public StringArraySet headSet(String toElement) {
+        return new StringArraySet(data, blocks, from, lowerBound(toElement));
+    }
+
+    @Override
+    public StringArraySet tailSet(String fromElement) {
+        return new StringArraySet(data, blocks, lowerBound(fromElement), to);
+    }
+
+    @Override
+    public Comparator<? super String> comparator() {
+        return null;
+    }
+
+    @Override
+    public String first() {
+        if (from == to) {
+            throw new NoSuchElementException();
+        }
+        return decode(from);
+    }
+
+    @Override
+    public String last() {
+        if (from == to) {
+            throw new NoSuchElementException();
+        }
+        return decode(to - 1);
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    private class Cursor {
+
+        private final StringBuilder current = new StringBuilder();
+        private int position;
+        private int index;
+
+        Cursor(int block) {
+            if (block < blocks.length) {
+                position = blocks[block];
+            } else {
+                position = data.length;
+            }
+            index = block * BLOCK_SIZE;
+        }
+
+        boolean hasNext() {
+            return position < data.length;
+        }
+
+        void advance() {
+            int prefix = 0;
+            if (index % BLOCK_SIZE != 0) {
+                prefix = readLength();
+            }
+            int length = readLength();
+            current.setLength(prefix);
+            current.append(data, position, length);
+            position += length;
+            index++;
+        }
+
+        private int readLength() {
+            int length = 0;
+            for (int shift = 0; ; shift += 15) {
+                char c = data[position++];
+                length |= (c & 0x7FFF) << shift;
+                if (c < 0x8000) {
+                    return length;
+                }
+            }
+        }
+    }
+}
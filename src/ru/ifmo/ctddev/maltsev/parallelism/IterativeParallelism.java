@@ -1,56 +1,160 @@
 package ru.ifmo.ctddev.maltsev.parallelism;
 
-import info.kgeorgiy.java.advanced.concurrent.ScalarIP;
+import info.kgeorgiy.java.advanced.concurrent.ListIP;
 import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.OptionalDouble;
+import java.util.PriorityQueue;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoublePredicate;
 import java.util.function.Function;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntPredicate;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongPredicate;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
+import java.util.stream.Collector;
 
 
-public class IterativeParallelism implements ScalarIP {
+public class IterativeParallelism implements ListIP, AutoCloseable {
+    private static final int POLL_INTERVAL = 1024;
+
     private ParallelMapper mapper;
+    private ExecutorService executor;
+    private boolean ownsExecutor;
+    private int grain;
+    private ForkJoinPool pool;
 
     public IterativeParallelism() {
+        this(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        }));
+        ownsExecutor = true;
+    }
 
+    public IterativeParallelism(ExecutorService executor) {
+        this.executor = executor;
     }
 
     public IterativeParallelism(ParallelMapper mapper) {
         this.mapper = mapper;
     }
 
-    private <T, K> List<K> run(int n, List<? extends T> list, Function<List<? extends T>, K> function) throws InterruptedException {
-        List<ParallelJob<List<? extends T>, K>> data = new ArrayList<>();
-        List<List<? extends T>> mapperList = new ArrayList<>();
-        n = Math.min(n, list.size());
-        int x = list.size() / n;
-        int k = n + n * x - list.size();
+    private IterativeParallelism(int grain) {
+        this.grain = grain;
+        this.pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an instance that splits work into chunks of {@code grain} elements. At most {@code threads} workers
+     * per call take the chunks one at a time, so that cheap chunks do not wait for expensive ones. All calls share
+     * one fork/join pool sized to the available processors.
+     */
+    public static IterativeParallelism adaptive(int grain) {
+        if (grain <= 0) {
+            throw new IllegalArgumentException("Grain should be positive: " + grain);
+        }
+        return new IterativeParallelism(grain);
+    }
+
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private <K> List<K> run(int n, int size, Function<Range, K> function) throws InterruptedException {
+        if (pool != null) {
+            return runAdaptive(n, size, function);
+        }
+        List<Range> ranges = new ArrayList<>();
+        n = Math.max(1, Math.min(n, size));
+        int x = size / n;
+        int k = n + n * x - size;
         int pos = 0;
         for (int i = 0; i < n; ++i) {
             int operationsForThisJob = i >= k ? x + 1 : x;
-            int right = pos + operationsForThisJob;
-            if (mapper != null) {
-                mapperList.add(list.subList(pos, right));
-            } else {
-                data.add(i, new ParallelJob<>(list.subList(pos, right), function));
-            }
+            ranges.add(new Range(pos, pos + operationsForThisJob));
             pos += operationsForThisJob;
         }
         if (mapper != null) {
-            return mapper.map(function, mapperList);
-        } else {
-            List<Thread> threads = new ArrayList<>();
-            data.stream().map(Thread::new).forEach(threads::add);
-            threads.forEach(Thread::start);
-            for (Thread thread : threads) {
-                thread.join();
+            return mapper.map(function, ranges);
+        }
+        // the calling thread takes the first chunk itself instead of idling in Future.get()
+        List<Future<K>> futures = new ArrayList<>();
+        for (Range range : ranges.subList(1, ranges.size())) {
+            futures.add(executor.submit(() -> function.apply(range)));
+        }
+        try {
+            List<K> result = new ArrayList<>(n);
+            result.add(function.apply(ranges.get(0)));
+            for (Future<K> future : futures) {
+                result.add(future.get());
+            }
+            return result;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
             }
-            return data.stream().map(ParallelJob::getResult).collect(Collectors.toList());
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            for (Future<K> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <K> List<K> runAdaptive(int n, int size, Function<Range, K> function) {
+        int chunks = Math.max(1, (size + grain - 1) / grain);
+        Object[] result = new Object[chunks];
+        AtomicInteger next = new AtomicInteger();
+        List<ChunkAction<K>> workers = new ArrayList<>();
+        for (int i = Math.min(Math.max(1, n), chunks); i > 0; i--) {
+            workers.add(new ChunkAction<>(function, result, size, next));
         }
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(workers)));
+        return (List<K>) Arrays.asList(result);
+    }
+
+    private <T, K> List<K> run(int n, List<? extends T> list, Function<List<? extends T>, K> function) throws InterruptedException {
+        List<? extends T> source = randomAccess(list);
+        return run(n, source.size(), range -> function.apply(source.subList(range.from, range.to)));
+    }
 
+    // subList and get on a sequential list walk from the head, so every chunk would pay for all the chunks before it
+    @SuppressWarnings("unchecked")
+    private static <T> List<? extends T> randomAccess(List<? extends T> list) {
+        return list instanceof RandomAccess ? list : (List<? extends T>) Arrays.asList(list.toArray());
     }
 
     private <T> T comparatorOperation(int i, List<? extends T> list, Function<List<? extends T>, T> function) throws InterruptedException {
@@ -70,36 +174,846 @@ public class IterativeParallelism implements ScalarIP {
 
     @Override
     public <T> boolean all(int i, List<? extends T> list, Predicate<? super T> predicate) throws InterruptedException {
-        Function<List<? extends T>, Boolean> all = data -> data.stream().allMatch(predicate);
-        List<Boolean> result = run(i, list, all);
-        return result.stream().allMatch(Predicate.isEqual(true));
+        return !any(i, list, predicate.negate());
     }
 
     @Override
     public <T> boolean any(int i, List<? extends T> list, Predicate<? super T> predicate) throws InterruptedException {
-        Function<List<? extends T>, Boolean> all = data -> data.stream().anyMatch(predicate);
-        List<Boolean> result = run(i, list, all);
-        return result.stream().anyMatch(Predicate.isEqual(true));
+        // the first match stops every other chunk at its next element
+        AtomicBoolean found = new AtomicBoolean();
+        run(i, list, data -> {
+            for (T value : data) {
+                if (found.get()) {
+                    break;
+                }
+                if (predicate.test(value)) {
+                    found.set(true);
+                    break;
+                }
+            }
+            return true;
+        });
+        return found.get();
+    }
+
+    @Override
+    public String join(int i, List<?> list) throws InterruptedException {
+        List<String[]> parts = run(i, list, data -> data.stream().map(String::valueOf).toArray(String[]::new));
+        long length = 0;
+        for (String[] part : parts) {
+            for (String string : part) {
+                length += string.length();
+            }
+        }
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Joined string is too long: " + length + " characters");
+        }
+        StringBuilder result = new StringBuilder((int) length);
+        for (String[] part : parts) {
+            for (String string : part) {
+                result.append(string);
+            }
+        }
+        return result.toString();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> List<T> filter(int i, List<? extends T> list, Predicate<? super T> predicate) throws InterruptedException {
+        List<List<T>> parts = run(i, list, data -> {
+            List<T> kept = new ArrayList<>();
+            for (T value : data) {
+                if (predicate.test(value)) {
+                    kept.add(value);
+                }
+            }
+            return kept;
+        });
+        int size = 0;
+        for (List<T> part : parts) {
+            size += part.size();
+        }
+        Object[] result = new Object[size];
+        int pos = 0;
+        for (List<T> part : parts) {
+            for (T value : part) {
+                result[pos++] = value;
+            }
+        }
+        return (List<T>) Arrays.asList(result);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T, U> List<U> map(int i, List<? extends T> list, Function<? super T, ? extends U> function) throws InterruptedException {
+        List<? extends T> source = randomAccess(list);
+        Object[] result = new Object[source.size()];
+        run(i, source.size(), range -> {
+            for (int j = range.from; j < range.to; j++) {
+                result[j] = function.apply(source.get(j));
+            }
+            return range;
+        });
+        return (List<U>) Arrays.asList(result);
+    }
+
+    /**
+     * Maps every element and folds the results with {@code combiner} in one parallel pass.
+     * {@code identity} must be an identity of the associative {@code combiner}.
+     */
+    public <T, R> R mapReduce(int i, List<? extends T> list, Function<? super T, ? extends R> mapper,
+                              R identity, BinaryOperator<R> combiner) throws InterruptedException {
+        List<R> parts = run(i, list, data -> {
+            R result = identity;
+            for (T value : data) {
+                result = combiner.apply(result, mapper.apply(value));
+            }
+            return result;
+        });
+        R result = identity;
+        for (R part : parts) {
+            result = combiner.apply(result, part);
+        }
+        return result;
+    }
+
+    /**
+     * Performs a mutable reduction with {@code collector}: every chunk accumulates into its own container
+     * and the containers are combined in chunk order.
+     */
+    public <T, A, R> R collect(int i, List<? extends T> list, Collector<? super T, A, R> collector) throws InterruptedException {
+        BiConsumer<A, ? super T> accumulator = collector.accumulator();
+        List<A> parts = run(i, list, data -> {
+            A container = collector.supplier().get();
+            for (T value : data) {
+                accumulator.accept(container, value);
+            }
+            return container;
+        });
+        BinaryOperator<A> combiner = collector.combiner();
+        A result = parts.get(0);
+        for (A part : parts.subList(1, parts.size())) {
+            result = combiner.apply(result, part);
+        }
+        return collector.finisher().apply(result);
+    }
+
+    /**
+     * Computes minimum, maximum, size and the number of elements matching {@code predicate} in one pass,
+     * instead of separate {@link #maximum}, {@link #minimum} and {@link #any} calls each reading the whole list.
+     * Like those, the first of equal extremes wins.
+     */
+    public <T> Statistics<T> statistics(int i, List<? extends T> list, Comparator<? super T> comparator,
+                                        Predicate<? super T> predicate) throws InterruptedException {
+        List<Statistics<T>> parts = run(i, list, data -> {
+            Statistics<T> statistics = new Statistics<>();
+            for (T value : data) {
+                statistics.accept(value, comparator, predicate.test(value));
+            }
+            return statistics;
+        });
+        Statistics<T> result = new Statistics<>();
+        for (Statistics<T> part : parts) {
+            result.combine(part, comparator);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the {@code k} largest elements, largest first. Every chunk keeps only its own {@code k} largest
+     * in a bounded heap, so the sequential merge sees at most {@code k} elements per chunk.
+     */
+    public <T> List<T> topK(int i, List<? extends T> list, int k, Comparator<? super T> comparator) throws InterruptedException {
+        if (k < 0) {
+            throw new IllegalArgumentException("k should be non-negative: " + k);
+        }
+        List<PriorityQueue<T>> parts = run(i, list, data -> {
+            PriorityQueue<T> heap = new PriorityQueue<>(Math.min(k, data.size()) + 1, comparator);
+            for (T value : data) {
+                offer(heap, value, k, comparator);
+            }
+            return heap;
+        });
+        PriorityQueue<T> heap = new PriorityQueue<>(Math.min(k, list.size()) + 1, comparator);
+        for (PriorityQueue<T> part : parts) {
+            for (T value : part) {
+                offer(heap, value, k, comparator);
+            }
+        }
+        List<T> result = new ArrayList<>(heap);
+        result.sort(comparator.reversed());
+        return result;
+    }
+
+    private static <T> void offer(PriorityQueue<T> heap, T value, int k, Comparator<? super T> comparator) {
+        if (heap.size() < k) {
+            heap.add(value);
+        } else if (k > 0 && comparator.compare(value, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(value);
+        }
+    }
+
+    /**
+     * Returns a sorted copy of the list. Chunks are sorted in parallel and then merged pairwise,
+     * each round merging its pairs in parallel. The sort is stable.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> sort(int i, List<? extends T> list, Comparator<? super T> comparator) throws InterruptedException {
+        Object[] data = list.toArray();
+        Comparator<Object> order = (a, b) -> comparator.compare((T) a, (T) b);
+        List<Range> runs = run(i, data.length, range -> {
+            Arrays.sort(data, range.from, range.to, order);
+            return range;
+        });
+        Object[] source = data;
+        Object[] target = new Object[data.length];
+        while (runs.size() > 1) {
+            List<Range> current = runs;
+            Object[] from = source;
+            Object[] to = target;
+            List<Range> merged = new ArrayList<>();
+            for (int j = 0; j < current.size(); j += 2) {
+                merged.add(new Range(current.get(j).from, current.get(Math.min(j + 1, current.size() - 1)).to));
+            }
+            run(i, merged.size(), range -> {
+                for (int j = range.from; j < range.to; j++) {
+                    Range left = current.get(2 * j);
+                    int middle = 2 * j + 1 < current.size() ? current.get(2 * j + 1).from : left.to;
+                    merge(from, left.from, middle, merged.get(j).to, to, order);
+                }
+                return range;
+            });
+            runs = merged;
+            source = to;
+            target = from;
+        }
+        return (List<T>) Arrays.asList(source);
+    }
+
+    private static void merge(Object[] source, int from, int middle, int to, Object[] target, Comparator<Object> order) {
+        int left = from;
+        int right = middle;
+        for (int j = from; j < to; j++) {
+            if (right == to || left < middle && order.compare(source[left], source[right]) <= 0) {
+                target[j] = source[left++];
+            } else {
+                target[j] = source[right++];
+            }
+        }
+    }
+
+    /**
+     * Returns the distinct elements in order of their first occurrence. Elements are split into hash partitions,
+     * each owned by one worker that marks the first occurrence of every key in it; then every chunk copies its
+     * marked elements to a precomputed offset of the result. All three passes run in parallel.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> distinct(int i, List<? extends T> list) throws InterruptedException {
+        List<? extends T> source = randomAccess(list);
+        int partitions = Math.max(1, i);
+        List<Buckets> chunks = run(i, source.size(), range -> new Buckets(source, range, partitions));
+        int[] starts = new int[chunks.size()];
+        for (int c = 0; c < starts.length; c++) {
+            starts[c] = chunks.get(c).range.from;
+        }
+        boolean[] first = new boolean[source.size()];
+        int[][] kept = new int[chunks.size()][partitions];
+        // both later passes see the same chunks since run() is deterministic; chunk c owns a slice of partitions
+        run(i, source.size(), range -> {
+            int c = Arrays.binarySearch(starts, range.from);
+            int from = (int) (((long) c * partitions + starts.length - 1) / starts.length);
+            int to = (int) (((long) (c + 1) * partitions + starts.length - 1) / starts.length);
+            for (int p = from; p < to; p++) {
+                Set<T> seen = new HashSet<>();
+                for (int d = 0; d < chunks.size(); d++) {
+                    Buckets buckets = chunks.get(d);
+                    for (int k = buckets.bounds[p]; k < buckets.bounds[p + 1]; k++) {
+                        int j = buckets.indices[k];
+                        if (seen.add(source.get(j))) {
+                            first[j] = true;
+                            kept[d][p]++;
+                        }
+                    }
+                }
+            }
+            return range;
+        });
+        int[] offsets = new int[starts.length + 1];
+        for (int c = 0; c < starts.length; c++) {
+            offsets[c + 1] = offsets[c];
+            for (int count : kept[c]) {
+                offsets[c + 1] += count;
+            }
+        }
+        Object[] result = new Object[offsets[starts.length]];
+        run(i, source.size(), range -> {
+            int position = offsets[Arrays.binarySearch(starts, range.from)];
+            for (int j = range.from; j < range.to; j++) {
+                if (first[j]) {
+                    result[position++] = source.get(j);
+                }
+            }
+            return range;
+        });
+        return (List<T>) Arrays.asList(result);
+    }
+
+    /**
+     * Returns the running results of {@code operator} over the list: element {@code j} combines elements
+     * {@code 0..j}. Every chunk scans its own elements, then every chunk but the first combines its values with
+     * the total of the chunks before it. {@code operator} must be associative.
+     */
+    public <T> List<T> inclusiveScan(int i, List<? extends T> list, BinaryOperator<T> operator) throws InterruptedException {
+        return scan(i, list, operator, new Object[list.size()], 0);
+    }
+
+    /**
+     * Like {@link #inclusiveScan}, but element {@code j} combines elements {@code 0..j-1},
+     * so the first one is {@code identity}.
+     */
+    public <T> List<T> exclusiveScan(int i, List<? extends T> list, T identity, BinaryOperator<T> operator) throws InterruptedException {
+        Object[] result = new Object[list.size()];
+        if (result.length > 0) {
+            result[0] = identity;
+        }
+        return scan(i, list, operator, result, 1);
+    }
+
+    // the running value of element j goes to result[j + shift]; both passes see the same chunks since run() is deterministic
+    @SuppressWarnings("unchecked")
+    private <T> List<T> scan(int i, List<? extends T> list, BinaryOperator<T> operator, Object[] result, int shift) throws InterruptedException {
+        List<? extends T> source = randomAccess(list);
+        if (source.isEmpty()) {
+            return (List<T>) Arrays.asList(result);
+        }
+        List<Range> ranges = run(i, source.size(), range -> {
+            T accumulator = source.get(range.from);
+            for (int j = range.from; j < range.to; j++) {
+                if (j > range.from) {
+                    accumulator = operator.apply(accumulator, source.get(j));
+                }
+                if (j + shift < result.length) {
+                    result[j + shift] = accumulator;
+                }
+            }
+            return range;
+        });
+        int[] starts = new int[ranges.size()];
+        Object[] carries = new Object[ranges.size()];
+        for (int c = 1; c < ranges.size(); c++) {
+            starts[c] = ranges.get(c).from;
+            T last = (T) result[ranges.get(c - 1).to - 1 + shift];
+            carries[c] = c == 1 ? last : operator.apply((T) carries[c - 1], last);
+        }
+        run(i, source.size(), range -> {
+            int chunk = Arrays.binarySearch(starts, range.from);
+            if (chunk > 0) {
+                T carry = (T) carries[chunk];
+                int to = Math.min(range.to + shift, result.length);
+                for (int j = range.from + shift; j < to; j++) {
+                    result[j] = operator.apply(carry, (T) result[j]);
+                }
+            }
+            return range;
+        });
+        return (List<T>) Arrays.asList(result);
+    }
+
+    public int maximum(int i, int[] values) throws InterruptedException {
+        requireNonEmpty(values.length);
+        List<Integer> result = run(i, values.length, range -> {
+            int max = values[range.from];
+            for (int j = range.from + 1; j < range.to; j++) {
+                max = Math.max(max, values[j]);
+            }
+            return max;
+        });
+        int max = result.get(0);
+        for (int part : result) {
+            max = Math.max(max, part);
+        }
+        return max;
+    }
+
+    public int minimum(int i, int[] values) throws InterruptedException {
+        requireNonEmpty(values.length);
+        List<Integer> result = run(i, values.length, range -> {
+            int min = values[range.from];
+            for (int j = range.from + 1; j < range.to; j++) {
+                min = Math.min(min, values[j]);
+            }
+            return min;
+        });
+        int min = result.get(0);
+        for (int part : result) {
+            min = Math.min(min, part);
+        }
+        return min;
+    }
+
+    public boolean all(int i, int[] values, IntPredicate predicate) throws InterruptedException {
+        return !find(i, values, predicate, false);
+    }
+
+    public boolean any(int i, int[] values, IntPredicate predicate) throws InterruptedException {
+        return find(i, values, predicate, true);
+    }
+
+    // looks for an element on which predicate gives target; the flag shared by chunks is polled once per block
+    private boolean find(int i, int[] values, IntPredicate predicate, boolean target) throws InterruptedException {
+        AtomicBoolean found = new AtomicBoolean();
+        run(i, values.length, range -> {
+            for (int from = range.from; from < range.to && !found.get(); from += POLL_INTERVAL) {
+                int to = range.to - from > POLL_INTERVAL ? from + POLL_INTERVAL : range.to;
+                for (int j = from; j < to; j++) {
+                    if (predicate.test(values[j]) == target) {
+                        found.set(true);
+                        break;
+                    }
+                }
+            }
+            return true;
+        });
+        return found.get();
+    }
+
+    public long sum(int i, int[] values) throws InterruptedException {
+        List<Long> result = run(i, values.length, range -> {
+            long sum = 0;
+            for (int j = range.from; j < range.to; j++) {
+                sum += values[j];
+            }
+            return sum;
+        });
+        long sum = 0;
+        for (long part : result) {
+            sum += part;
+        }
+        return sum;
+    }
+
+    public OptionalDouble average(int i, int[] values) throws InterruptedException {
+        return values.length == 0 ? OptionalDouble.empty() : OptionalDouble.of((double) sum(i, values) / values.length);
+    }
+
+    public int count(int i, int[] values, IntPredicate predicate) throws InterruptedException {
+        return total(run(i, values.length, range -> {
+            int count = 0;
+            for (int j = range.from; j < range.to; j++) {
+                if (predicate.test(values[j])) {
+                    count++;
+                }
+            }
+            return count;
+        }));
+    }
+
+    public long maximum(int i, long[] values) throws InterruptedException {
+        requireNonEmpty(values.length);
+        List<Long> result = run(i, values.length, range -> {
+            long max = values[range.from];
+            for (int j = range.from + 1; j < range.to; j++) {
+                max = Math.max(max, values[j]);
+            }
+            return max;
+        });
+        long max = result.get(0);
+        for (long part : result) {
+            max = Math.max(max, part);
+        }
+        return max;
+    }
+
+    public long minimum(int i, long[] values) throws InterruptedException {
+        requireNonEmpty(values.length);
+        List<Long> result = run(i, values.length, range -> {
+            long min = values[range.from];
+            for (int j = range.from + 1; j < range.to; j++) {
+                min = Math.min(min, values[j]);
+            }
+            return min;
+        });
+        long min = result.get(0);
+        for (long part : result) {
+            min = Math.min(min, part);
+        }
+        return min;
+    }
+
+    public boolean all(int i, long[] values, LongPredicate predicate) throws InterruptedException {
+        return !find(i, values, predicate, false);
+    }
+
+    public boolean any(int i, long[] values, LongPredicate predicate) throws InterruptedException {
+        return find(i, values, predicate, true);
+    }
+
+    // looks for an element on which predicate gives target; the flag shared by chunks is polled once per block
+    private boolean find(int i, long[] values, LongPredicate predicate, boolean target) throws InterruptedException {
+        AtomicBoolean found = new AtomicBoolean();
+        run(i, values.length, range -> {
+            for (int from = range.from; from < range.to && !found.get(); from += POLL_INTERVAL) {
+                int to = range.to - from > POLL_INTERVAL ? from + POLL_INTERVAL : range.to;
+                for (int j = from; j < to; j++) {
+                    if (predicate.test(values[j]) == target) {
+                        found.set(true);
+                        break;
+                    }
+                }
+            }
+            return true;
+        });
+        return found.get();
+    }
+
+    public long sum(int i, long[] values) throws InterruptedException {
+        List<Long> result = run(i, values.length, range -> {
+            long sum = 0;
+            for (int j = range.from; j < range.to; j++) {
+                sum += values[j];
+            }
+            return sum;
+        });
+        long sum = 0;
+        for (long part : result) {
+            sum += part;
+        }
+        return sum;
+    }
+
+    public OptionalDouble average(int i, long[] values) throws InterruptedException {
+        return values.length == 0 ? OptionalDouble.empty() : OptionalDouble.of((double) sum(i, values) / values.length);
+    }
+
+    public int count(int i, long[] values, LongPredicate predicate) throws InterruptedException {
+        return total(run(i, values.length, range -> {
+            int count = 0;
+            for (int j = range.from; j < range.to; j++) {
+                if (predicate.test(values[j])) {
+                    count++;
+                }
+            }
+            return count;
+        }));
+    }
+
+    public double maximum(int i, double[] values) throws InterruptedException {
+        requireNonEmpty(values.length);
+        List<Double> result = run(i, values.length, range -> {
+            double max = values[range.from];
+            for (int j = range.from + 1; j < range.to; j++) {
+                max = Math.max(max, values[j]);
+            }
+            return max;
+        });
+        double max = result.get(0);
+        for (double part : result) {
+            max = Math.max(max, part);
+        }
+        return max;
+    }
+
+    public double minimum(int i, double[] values) throws InterruptedException {
+        requireNonEmpty(values.length);
+        List<Double> result = run(i, values.length, range -> {
+            double min = values[range.from];
+            for (int j = range.from + 1; j < range.to; j++) {
+                min = Math.min(min, values[j]);
+            }
+            return min;
+        });
+        double min = result.get(0);
+        for (double part : result) {
+            min = Math.min(min, part);
+        }
+        return min;
+    }
+
+    public boolean all(int i, double[] values, DoublePredicate predicate) throws InterruptedException {
+        return !find(i, values, predicate, false);
+    }
+
+    public boolean any(int i, double[] values, DoublePredicate predicate) throws InterruptedException {
+        return find(i, values, predicate, true);
+    }
+
+    // looks for an element on which predicate gives target; the flag shared by chunks is polled once per block
+    private boolean find(int i, double[] values, DoublePredicate predicate, boolean target) throws InterruptedException {
+        AtomicBoolean found = new AtomicBoolean();
+        run(i, values.length, range -> {
+            for (int from = range.from; from < range.to && !found.get(); from += POLL_INTERVAL) {
+                int to = range.to - from > POLL_INTERVAL ? from + POLL_INTERVAL : range.to;
+                for (int j = from; j < to; j++) {
+                    if (predicate.test(values[j]) == target) {
+                        found.set(true);
+                        break;
+                    }
+                }
+            }
+            return true;
+        });
+        return found.get();
+    }
+
+    public double sum(int i, double[] values) throws InterruptedException {
+        List<Double> result = run(i, values.length, range -> {
+            double sum = 0.0;
+            for (int j = range.from; j < range.to; j++) {
+                sum += values[j];
+            }
+            return sum;
+        });
+        double sum = 0.0;
+        for (double part : result) {
+            sum += part;
+        }
+        return sum;
+    }
+
+    public OptionalDouble average(int i, double[] values) throws InterruptedException {
+        return values.length == 0 ? OptionalDouble.empty() : OptionalDouble.of(sum(i, values) / values.length);
     }
 
-    private static class ParallelJob<T, K> implements Runnable {
+    public int count(int i, double[] values, DoublePredicate predicate) throws InterruptedException {
+        return total(run(i, values.length, range -> {
+            int count = 0;
+            for (int j = range.from; j < range.to; j++) {
+                if (predicate.test(values[j])) {
+                    count++;
+                }
+            }
+            return count;
+        }));
+    }
+
+    public int[] inclusiveScan(int i, int[] values, IntBinaryOperator operator) throws InterruptedException {
+        int[] result = new int[values.length];
+        scan(i, values, operator, result, 0);
+        return result;
+    }
+
+    public int[] exclusiveScan(int i, int[] values, int identity, IntBinaryOperator operator) throws InterruptedException {
+        int[] result = new int[values.length];
+        if (result.length > 0) {
+            result[0] = identity;
+        }
+        scan(i, values, operator, result, 1);
+        return result;
+    }
+
+    private void scan(int i, int[] values, IntBinaryOperator operator, int[] result, int shift) throws InterruptedException {
+        if (values.length == 0) {
+            return;
+        }
+        List<Range> ranges = run(i, values.length, range -> {
+            int accumulator = values[range.from];
+            for (int j = range.from; j < range.to; j++) {
+                if (j > range.from) {
+                    accumulator = operator.applyAsInt(accumulator, values[j]);
+                }
+                if (j + shift < result.length) {
+                    result[j + shift] = accumulator;
+                }
+            }
+            return range;
+        });
+        int[] starts = new int[ranges.size()];
+        int[] carries = new int[ranges.size()];
+        for (int c = 1; c < ranges.size(); c++) {
+            starts[c] = ranges.get(c).from;
+            int last = result[ranges.get(c - 1).to - 1 + shift];
+            carries[c] = c == 1 ? last : operator.applyAsInt(carries[c - 1], last);
+        }
+        run(i, values.length, range -> {
+            int chunk = Arrays.binarySearch(starts, range.from);
+            if (chunk > 0) {
+                int carry = carries[chunk];
+                int to = Math.min(range.to + shift, result.length);
+                for (int j = range.from + shift; j < to; j++) {
+                    result[j] = operator.applyAsInt(carry, result[j]);
+                }
+            }
+            return range;
+        });
+    }
+
+    public long[] inclusiveScan(int i, long[] values, LongBinaryOperator operator) throws InterruptedException {
+        long[] result = new long[values.length];
+        scan(i, values, operator, result, 0);
+        return result;
+    }
+
+    public long[] exclusiveScan(int i, long[] values, long identity, LongBinaryOperator operator) throws InterruptedException {
+        long[] result = new long[values.length];
+        if (result.length > 0) {
+            result[0] = identity;
+        }
+        scan(i, values, operator, result, 1);
+        return result;
+    }
+
+    private void scan(int i, long[] values, LongBinaryOperator operator, long[] result, int shift) throws InterruptedException {
+        if (values.length == 0) {
+            return;
+        }
+        List<Range> ranges = run(i, values.length, range -> {
+            long accumulator = values[range.from];
+            for (int j = range.from; j < range.to; j++) {
+                if (j > range.from) {
+                    accumulator = operator.applyAsLong(accumulator, values[j]);
+                }
+                if (j + shift < result.length) {
+                    result[j + shift] = accumulator;
+                }
+            }
+            return range;
+        });
+        int[] starts = new int[ranges.size()];
+        long[] carries = new long[ranges.size()];
+        for (int c = 1; c < ranges.size(); c++) {
+            starts[c] = ranges.get(c).from;
+            long last = result[ranges.get(c - 1).to - 1 + shift];
+            carries[c] = c == 1 ? last : operator.applyAsLong(carries[c - 1], last);
+        }
+        run(i, values.length, range -> {
+            int chunk = Arrays.binarySearch(starts, range.from);
+            if (chunk > 0) {
+                long carry = carries[chunk];
+                int to = Math.min(range.to + shift, result.length);
+                for (int j = range.from + shift; j < to; j++) {
+                    result[j] = operator.applyAsLong(carry, result[j]);
+                }
+            }
+            return range;
+        });
+    }
+
+    public double[] inclusiveScan(int i, double[] values, DoubleBinaryOperator operator) throws InterruptedException {
+        double[] result = new double[values.length];
+        scan(i, values, operator, result, 0);
+        return result;
+    }
+
+    public double[] exclusiveScan(int i, double[] values, double identity, DoubleBinaryOperator operator) throws InterruptedException {
+        double[] result = new double[values.length];
+        if (result.length > 0) {
+            result[0] = identity;
+        }
+        scan(i, values, operator, result, 1);
+        return result;
+    }
+
+    private void scan(int i, double[] values, DoubleBinaryOperator operator, double[] result, int shift) throws InterruptedException {
+        if (values.length == 0) {
+            return;
+        }
+        List<Range> ranges = run(i, values.length, range -> {
+            double accumulator = values[range.from];
+            for (int j = range.from; j < range.to; j++) {
+                if (j > range.from) {
+                    accumulator = operator.applyAsDouble(accumulator, values[j]);
+                }
+                if (j + shift < result.length) {
+                    result[j + shift] = accumulator;
+                }
+            }
+            return range;
+        });
+        int[] starts = new int[ranges.size()];
+        double[] carries = new double[ranges.size()];
+        for (int c = 1; c < ranges.size(); c++) {
+            starts[c] = ranges.get(c).from;
+            double last = result[ranges.get(c - 1).to - 1 + shift];
+            carries[c] = c == 1 ? last : operator.applyAsDouble(carries[c - 1], last);
+        }
+        run(i, values.length, range -> {
+            int chunk = Arrays.binarySearch(starts, range.from);
+            if (chunk > 0) {
+                double carry = carries[chunk];
+                int to = Math.min(range.to + shift, result.length);
+                for (int j = range.from + shift; j < to; j++) {
+                    result[j] = operator.applyAsDouble(carry, result[j]);
+                }
+            }
+            return range;
+        });
+    }
+
+    private static void requireNonEmpty(int size) {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+    }
+
+    private static int total(List<Integer> parts) {
+        int total = 0;
+        for (int part : parts) {
+            total += part;
+        }
+        return total;
+    }
+
+    private static class ChunkAction<K> extends RecursiveAction {
 
-        private final T data;
-        private final Function<T, K> function;
-        private K result;
+        private static final long serialVersionUID = 1L;
 
-        private ParallelJob(T data, Function<T, K> function) {
-            this.data = data;
+        private final Function<Range, K> function;
+        private final Object[] result;
+        private final int size;
+        private final AtomicInteger next;
+
+        private ChunkAction(Function<Range, K> function, Object[] result, int size, AtomicInteger next) {
             this.function = function;
+            this.result = result;
+            this.size = size;
+            this.next = next;
         }
 
         @Override
-        public void run() {
-            result = function.apply(data);
+        protected void compute() {
+            int chunks = result.length;
+            for (int chunk = next.getAndIncrement(); chunk < chunks; chunk = next.getAndIncrement()) {
+                result[chunk] = function.apply(new Range((int) ((long) chunk * size / chunks), (int) ((long) (chunk + 1) * size / chunks)));
+            }
         }
+    }
 
-        K getResult() {
-            return result;
+    // indices of one chunk grouped by hash partition, ascending inside every partition
+    private static class Buckets {
+
+        private final Range range;
+        private final int[] indices;
+        private final int[] bounds;
+
+        private Buckets(List<?> source, Range range, int partitions) {
+            this.range = range;
+            int[] partition = new int[range.to - range.from];
+            bounds = new int[partitions + 1];
+            for (int j = range.from; j < range.to; j++) {
+                int hash = Objects.hashCode(source.get(j)) * 0x9E3779B9;
+                partition[j - range.from] = (int) (((hash & 0xFFFFFFFFL) * partitions) >>> 32);
+                bounds[partition[j - range.from] + 1]++;
+            }
+            for (int p = 0; p < partitions; p++) {
+                bounds[p + 1] += bounds[p];
+            }
+            indices = new int[partition.length];
+            int[] next = Arrays.copyOf(bounds, partitions);
+            for (int j = range.from; j < range.to; j++) {
+                indices[next[partition[j - range.from]]++] = j;
+            }
+        }
+    }
+
+    private static class Range {
+
+        private final int from;
+        private final int to;
+
+        private Range(int from, int to) {
+            this.from = from;
+            this.to = to;
         }
     }
 
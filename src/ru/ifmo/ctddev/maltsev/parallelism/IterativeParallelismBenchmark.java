@@ -0,0 +1,81 @@
+package ru.ifmo.ctddev.maltsev.parallelism;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Hand-run benchmark of the per-call cost of {@link IterativeParallelism#maximum} on the pooled executor against
+ * starting a fresh {@link Thread} per chunk on every call, for lists of 1K to 10M elements.
+ * <p>
+ * Usage: {@code IterativeParallelismBenchmark [threads]}; prints the best average time per call of five rounds.
+ */
+public class IterativeParallelismBenchmark {
+
+    private static final int[] SIZES = {1_000, 10_000, 100_000, 1_000_000, 10_000_000};
+
+    // keeps the JIT from dropping the calls
+    private static volatile long sink;
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        Random random = new Random(1);
+        List<Integer> data = new ArrayList<>();
+        for (int i = 0; i < SIZES[SIZES.length - 1]; i++) {
+            data.add(random.nextInt());
+        }
+        try (IterativeParallelism parallelism = new IterativeParallelism()) {
+            for (int size : SIZES) {
+                List<Integer> list = new ArrayList<>(data.subList(0, size));
+                int calls = Math.max(10, Math.min(20_000, 20_000_000 / size));
+                long pooled = measure(calls, () -> parallelism.maximum(threads, list, Comparator.naturalOrder()));
+                long perCall = measure(calls, () -> threadPerCall(threads, list));
+                System.out.printf("threads=%d size=%,d: pooled %,d ns/call, thread per call %,d ns/call%n",
+                        threads, size, pooled, perCall);
+            }
+        }
+    }
+
+    private static long measure(int calls, Call call) throws InterruptedException {
+        long total = 0;
+        for (int i = 0; i < calls; i++) {
+            total += call.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < calls; i++) {
+                total += call.run();
+            }
+            best = Math.min(best, (System.nanoTime() - start) / calls);
+        }
+        sink = total;
+        return best;
+    }
+
+    // the chunking of IterativeParallelism with the Thread-per-chunk execution it used before the pool
+    private static int threadPerCall(int threads, List<Integer> list) throws InterruptedException {
+        int n = Math.max(1, Math.min(threads, list.size()));
+        int[] result = new int[n];
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            int chunk = i;
+            List<Integer> data = list.subList((int) ((long) i * list.size() / n), (int) ((long) (i + 1) * list.size() / n));
+            workers.add(new Thread(() -> result[chunk] = data.stream().max(Comparator.naturalOrder()).get()));
+        }
+        workers.forEach(Thread::start);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        int max = result[0];
+        for (int value : result) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+
+    private interface Call {
+        int run() throws InterruptedException;
+    }
+}
@@ -0,0 +1,76 @@
+package ru.ifmo.ctddev.maltsev.parallelism;
+
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+
+/**
+ * Minimum, maximum, size and predicate match count of a list, computed by
+ * {@link IterativeParallelism#statistics} in a single pass.
+ */
+public class Statistics<T> {
+
+    private T minimum;
+    private T maximum;
+    private int size;
+    private int matched;
+
+    Statistics() {
+    }
+
+    void accept(T value, Comparator<? super T> comparator, boolean matches) {
+        if (size == 0 || comparator.compare(value, minimum) < 0) {
+            minimum = value;
+        }
+        if (size == 0 || comparator.compare(value, maximum) > 0) {
+            maximum = value;
+        }
+        size++;
+        if (matches) {
+            matched++;
+        }
+    }
+
+    void combine(Statistics<T> other, Comparator<? super T> comparator) {
+        if (other.size == 0) {
+            return;
+        }
+        if (size == 0 || comparator.compare(other.minimum, minimum) < 0) {
+            minimum = other.minimum;
+        }
+        if (size == 0 || comparator.compare(other.maximum, maximum) > 0) {
+            maximum = other.maximum;
+        }
+        size += other.size;
+        matched += other.matched;
+    }
+
+    public T getMinimum() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return minimum;
+    }
+
+    public T getMaximum() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return maximum;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getMatched() {
+        return matched;
+    }
+
+    public boolean anyMatch() {
+        return matched > 0;
+    }
+
+    public boolean allMatch() {
+        return matched == size;
+    }
+}